@@ -0,0 +1,81 @@
+package ru.itfb;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Запуск: mvn -Pjmh package exec:exec
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ShapeCalcBenchmark {
+    private static final int SIZE = 1024;
+
+    private ShapeCalc.Shape[] shapes;
+    private ShapeCalc.IRound[] roundShapes;
+    private int scale = 2;
+
+    @Setup
+    public void setUp() {
+        shapes = new ShapeCalc.Shape[SIZE];
+        roundShapes = new ShapeCalc.IRound[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            final long id = i;
+            final BigDecimal value = BigDecimal.valueOf(i % 10 + 1);
+            // Все пять типов вперемешку, чтобы точки вызова видели весь набор классов
+            shapes[i] = switch (i % 5) {
+                case 0 -> ShapeCalc.Circle.create(id, value, 2, false);
+                case 1 -> ShapeCalc.Square.create(id, value, 2, false);
+                case 2 -> ShapeCalc.Sphere.create(id, value, 2, false);
+                case 3 -> ShapeCalc.Parallelogram.create(id, value, BigDecimal.ONE, value, 2, false);
+                default -> ShapeCalc.Cube.create(id, value, 2, false);
+            };
+            roundShapes[i] = i % 2 == 0
+                    ? ShapeCalc.Circle.create(id, value, 2, false)
+                    : ShapeCalc.Sphere.create(id, value, 2, false);
+        }
+    }
+
+    @Benchmark
+    public ShapeCalc.Shape[] rescaleMixed() {
+        // Масштаб чередуется 2 <-> 4, поэтому размеры фигур не уплывают между вызовами
+        scale = scale == 2 ? 4 : 2;
+        for (ShapeCalc.Shape shape : shapes) {
+            shape.rescale(scale, false);
+        }
+        return shapes;
+    }
+
+    @Benchmark
+    public BigDecimal sumAreaMixed() {
+        return ShapeCalc.sumArea(shapes);
+    }
+
+    // Прежняя реализация sumArea на стримах на той же иерархии: отличие от sumAreaMixed только в цикле
+    @Benchmark
+    public BigDecimal sumAreaStreamMixed() {
+        return Arrays.stream(shapes)
+                .map(ShapeCalc.Shape::getArea)
+                .reduce(BigDecimal::add)
+                .orElseThrow();
+    }
+
+    @Benchmark
+    public BigDecimal averageRadiusMixed() {
+        return ShapeCalc.calculateAverageRadius(roundShapes);
+    }
+}
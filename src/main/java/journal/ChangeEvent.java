@@ -0,0 +1,22 @@
+package journal;
+
+import model.IDbRecord;
+import model.IMutableExternally;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDateTime;
+
+public record ChangeEvent(@NotNull String recordId,
+                          @NotNull String initiator,
+                          int changeNumber,
+                          @NotNull LocalDateTime timestamp) {
+
+    @NotNull
+    public static <R extends IDbRecord<?> & IMutableExternally> ChangeEvent of(@NotNull R record) {
+        return new ChangeEvent(
+                String.valueOf(record.getId()),
+                record.getLastChangeInitiator(),
+                record.getChangesNumber(),
+                record.getLastChangeDate());
+    }
+}
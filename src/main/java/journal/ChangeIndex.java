@@ -0,0 +1,143 @@
+package journal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Индекс одного сегмента журнала: положение записи хранится как (номер сегмента << 32 | смещение).
+// При закрытии сегмента индекс сохраняется рядом с ним
+final class ChangeIndex {
+    private static final int MAGIC = 0x4A494458; // "JIDX"
+
+    private final Map<String, LongList> byInitiator = new HashMap<>();
+    private final Map<String, LongList> byRecord = new HashMap<>();
+
+    synchronized void add(@NotNull ChangeEvent event, int segment, int offset) {
+        final long location = toLocation(segment, offset);
+        byInitiator.computeIfAbsent(event.initiator(), k -> new LongList()).add(location);
+        byRecord.computeIfAbsent(event.recordId(), k -> new LongList()).add(location);
+    }
+
+    @NotNull
+    synchronized long[] findByInitiator(@NotNull String initiator) {
+        return copyOf(byInitiator.get(initiator));
+    }
+
+    @NotNull
+    synchronized long[] findByRecord(@NotNull String recordId) {
+        return copyOf(byRecord.get(recordId));
+    }
+
+    // Пишем во временный файл и атомарно переименовываем, так что на диске либо старый индекс, либо новый целиком
+    synchronized void save(@NotNull Path file) throws IOException {
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        final CheckedOutputStream checked = new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp)), new CRC32C());
+        try (DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            write(out, byInitiator);
+            write(out, byRecord);
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Возвращает null, если файла нет или он повреждён: тогда индекс строится заново по сегменту
+    @Nullable
+    static ChangeIndex load(@NotNull Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        final CheckedInputStream checked;
+        try {
+            checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), new CRC32C());
+        } catch (IOException ex) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            final ChangeIndex index = new ChangeIndex();
+            read(in, index.byInitiator);
+            read(in, index.byRecord);
+            final int expected = (int) checked.getChecksum().getValue();
+            return in.readInt() == expected && in.read() < 0 ? index : null;
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    static long toLocation(int segment, int offset) {
+        return ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    @NotNull
+    private static long[] copyOf(@Nullable LongList locations) {
+        return locations == null ? new long[0] : Arrays.copyOf(locations.values, locations.size);
+    }
+
+    private static void write(@NotNull DataOutputStream out, @NotNull Map<String, LongList> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, LongList> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            final LongList locations = entry.getValue();
+            out.writeInt(locations.size);
+            for (int i = 0; i < locations.size; i++) {
+                out.writeLong(locations.values[i]);
+            }
+        }
+    }
+
+    private static void read(@NotNull DataInputStream in, @NotNull Map<String, LongList> map) throws IOException {
+        final int entries = in.readInt();
+        for (int i = 0; i < entries; i++) {
+            final String key = in.readUTF();
+            final int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Negative index entry size: " + size);
+            }
+            final LongList locations = new LongList();
+            for (int j = 0; j < size; j++) {
+                locations.add(in.readLong());
+            }
+            map.put(key, locations);
+        }
+    }
+
+    // Растущий массив long без упаковки в Long
+    private static final class LongList {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package journal;
+
+import exception.CriticalException;
+import model.IDbRecord;
+import model.IMutableExternally;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Журнал изменений IMutableExternally: запись только кладёт событие в кольцевой буфер,
+// а отдельный поток пачками сбрасывает события в сегменты журнала и обновляет индекс
+public class ChangeJournal implements AutoCloseable {
+    private static final int DEFAULT_BUFFER_CAPACITY = 1 << 16;
+    private static final int DEFAULT_BATCH_SIZE = 1024;
+    private static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(10);
+    private static final long BACKOFF_NANOS = Duration.ofMillis(1).toNanos();
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{6})\\.seg");
+    private static final int MAX_MAPPED_SEALED_SEGMENTS = 16;
+
+    private final Path directory;
+    private final int batchSize;
+    private final int segmentSize;
+    private final long flushIntervalNanos;
+    private final ChangeRingBuffer buffer;
+    // Закрытые сегменты отображаются только для чтения и по требованию; хранятся последние использованные
+    private final Map<Integer, JournalSegment> sealedSegments = lruCache();
+    // Индексы закрытых сегментов читаются из .idx по требованию с тем же ограничением, в памяти только их номера
+    private final Map<Integer, ChangeIndex> sealedIndexes = lruCache();
+    private final List<Integer> sealedNumbers = new ArrayList<>(); // под блокировкой sealedIndexes
+    private final Thread flusher;
+
+    private volatile JournalSegment current;
+    private volatile ChangeIndex currentIndex = new ChangeIndex(); // индекс текущего сегмента, пишет только поток сброса
+    private volatile long flushed;
+    private volatile boolean running = true;
+    private volatile Throwable failure;
+
+    private ChangeJournal(@NotNull Path directory,
+                          int bufferCapacity,
+                          int batchSize,
+                          int segmentSize,
+                          @NotNull Duration flushInterval) throws IOException {
+        this.directory = directory;
+        this.batchSize = batchSize;
+        this.segmentSize = segmentSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.buffer = new ChangeRingBuffer(bufferCapacity);
+        recover();
+        this.flusher = new Thread(this::flushLoop, "change-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @NotNull
+    public static ChangeJournal open(@NotNull Path directory) {
+        return open(directory, DEFAULT_BUFFER_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    @NotNull
+    public static ChangeJournal open(@NotNull Path directory,
+                                     int bufferCapacity,
+                                     int batchSize,
+                                     int segmentSize,
+                                     @NotNull Duration flushInterval) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("Flush interval must be positive: " + flushInterval);
+        }
+        if (segmentSize < JournalSegment.MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment size must be at least " + JournalSegment.MAX_RECORD_SIZE
+                    + " bytes: " + segmentSize);
+        }
+        try {
+            Files.createDirectories(directory);
+            return new ChangeJournal(directory, bufferCapacity, batchSize, segmentSize, flushInterval);
+        } catch (IOException ex) {
+            throw new CriticalException("Unable to open change journal in " + directory, ex);
+        }
+    }
+
+    public <R extends IDbRecord<?> & IMutableExternally> void record(@NotNull R record) {
+        record(ChangeEvent.of(record));
+    }
+
+    public void record(@NotNull ChangeEvent event) {
+        checkLength(event.recordId());
+        checkLength(event.initiator());
+        checkAlive();
+        while (!buffer.offer(event)) {
+            // Буфер заполнен: будим поток сброса и ждём, пока освободится место
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(BACKOFF_NANOS);
+            checkAlive();
+        }
+        // Если после offer журнал всё ещё открыт, close() увидит событие в буфере и допишет его.
+        // Иначе close() мог уже закончить, и событие не гарантированно попало в журнал
+        checkAlive();
+    }
+
+    // Блокируется, пока все события, записанные до вызова, не окажутся в журнале
+    public void flush() {
+        final long target = buffer.published();
+        while (flushed < target) {
+            checkAlive();
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(BACKOFF_NANOS);
+        }
+    }
+
+    @NotNull
+    public List<ChangeEvent> findByInitiator(@NotNull String initiator) {
+        return find(segmentIndex -> segmentIndex.findByInitiator(initiator));
+    }
+
+    @NotNull
+    public List<ChangeEvent> findByRecord(@NotNull String recordId) {
+        return find(segmentIndex -> segmentIndex.findByRecord(recordId));
+    }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(flusher);
+        // Ждём поток сброса и при прерывании: дописывать остаток одновременно с ним нельзя
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        // Поток сброса остановлен: остаток буфера дописываем сами
+        if (failure == null) {
+            flushed += buffer.drainTo(this::write, Integer.MAX_VALUE);
+        }
+        current.force();
+        synchronized (sealedSegments) {
+            sealedSegments.clear();
+        }
+        synchronized (sealedIndexes) {
+            sealedIndexes.clear();
+        }
+    }
+
+    private void flushLoop() {
+        try {
+            while (running) {
+                final int drained = buffer.drainTo(this::write, batchSize);
+                if (drained > 0) {
+                    current.force();
+                    flushed += drained;
+                } else {
+                    LockSupport.parkNanos(this, flushIntervalNanos);
+                }
+            }
+        } catch (Throwable ex) {
+            failure = ex;
+        }
+    }
+
+    private void write(@NotNull ChangeEvent event) {
+        int offset = current.append(event);
+        if (offset < 0) {
+            roll();
+            offset = current.append(event);
+        }
+        currentIndex.add(event, current.getNumber(), offset);
+    }
+
+    // Закрывает текущий сегмент: сохраняет его индекс рядом с ним и начинает следующий
+    private void roll() {
+        final int number = current.getNumber();
+        current.force();
+        try {
+            currentIndex.save(indexFile(number));
+            current = JournalSegment.openWritable(number + 1, segmentFile(number + 1), segmentSize, null);
+        } catch (IOException ex) {
+            throw new CriticalException("Unable to create journal segment " + (number + 1), ex);
+        }
+        // Номер сегмента и новый индекс меняются вместе, чтобы поиск не пропустил и не задвоил сегмент
+        synchronized (sealedIndexes) {
+            sealedNumbers.add(number);
+            sealedIndexes.put(number, currentIndex);
+            currentIndex = new ChangeIndex();
+        }
+    }
+
+    // Закрытые сегменты при открытии не читаются: их индексы загружаются при первом поиске.
+    // Последний сегмент открывается для дозаписи, его индекс строится по записям
+    private void recover() throws IOException {
+        final List<Integer> numbers = new ArrayList<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.map(p -> SEGMENT_NAME.matcher(p.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(m -> Integer.parseInt(m.group(1)))
+                    .sorted()
+                    .forEach(numbers::add);
+        }
+        if (numbers.isEmpty()) {
+            current = JournalSegment.openWritable(1, segmentFile(1), segmentSize, null);
+            return;
+        }
+        sealedNumbers.addAll(numbers.subList(0, numbers.size() - 1));
+        final int last = numbers.get(numbers.size() - 1);
+        final Path file = segmentFile(last);
+        current = JournalSegment.openWritable(last, file, (int) Math.max(Files.size(file), segmentSize),
+                (event, offset) -> currentIndex.add(event, last, offset));
+    }
+
+    @NotNull
+    private List<ChangeEvent> find(@NotNull Function<ChangeIndex, long[]> query) {
+        final Integer[] sealed;
+        final ChangeIndex active;
+        synchronized (sealedIndexes) {
+            sealed = sealedNumbers.toArray(new Integer[0]);
+            active = currentIndex;
+        }
+        final List<ChangeEvent> events = new ArrayList<>();
+        for (int number : sealed) {
+            read(query.apply(sealedIndex(number)), events);
+        }
+        read(query.apply(active), events);
+        return events;
+    }
+
+    // Сохранённый индекс закрытого сегмента; сегмент перечитывается, только если индекса нет или он повреждён.
+    // Файл читается вне блокировки, чтобы поиск не задерживал смену сегмента в потоке сброса
+    @NotNull
+    private ChangeIndex sealedIndex(int number) {
+        synchronized (sealedIndexes) {
+            final ChangeIndex cached = sealedIndexes.get(number);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final ChangeIndex loaded = ChangeIndex.load(indexFile(number));
+        synchronized (sealedIndexes) {
+            ChangeIndex segmentIndex = sealedIndexes.get(number);
+            if (segmentIndex == null) {
+                segmentIndex = loaded != null ? loaded : rebuildIndex(number);
+                sealedIndexes.put(number, segmentIndex);
+            }
+            return segmentIndex;
+        }
+    }
+
+    @NotNull
+    private ChangeIndex rebuildIndex(int number) {
+        final ChangeIndex segmentIndex = new ChangeIndex();
+        segment(number).scan((event, offset) -> segmentIndex.add(event, number, offset));
+        try {
+            segmentIndex.save(indexFile(number));
+        } catch (IOException ex) {
+            throw new CriticalException("Unable to save index of journal segment " + number, ex);
+        }
+        return segmentIndex;
+    }
+
+    @NotNull
+    private JournalSegment segment(int number) {
+        final JournalSegment active = current;
+        if (active.getNumber() == number) {
+            return active;
+        }
+        synchronized (sealedSegments) {
+            JournalSegment segment = sealedSegments.get(number);
+            if (segment == null) {
+                try {
+                    segment = JournalSegment.openReadOnly(number, segmentFile(number));
+                } catch (IOException ex) {
+                    throw new CriticalException("Unable to open journal segment " + number, ex);
+                }
+                sealedSegments.put(number, segment);
+            }
+            return segment;
+        }
+    }
+
+    @NotNull
+    private Path segmentFile(int number) {
+        return directory.resolve(String.format("journal-%06d.seg", number));
+    }
+
+    @NotNull
+    private Path indexFile(int number) {
+        return directory.resolve(String.format("journal-%06d.idx", number));
+    }
+
+    private void read(@NotNull long[] locations, @NotNull List<ChangeEvent> events) {
+        for (long location : locations) {
+            events.add(segment(ChangeIndex.segmentOf(location)).read(ChangeIndex.offsetOf(location)));
+        }
+    }
+
+    private void checkAlive() {
+        if (failure != null) {
+            throw new CriticalException("Change journal flusher has failed", failure);
+        }
+        if (!running) {
+            throw new IllegalStateException("Change journal is closed");
+        }
+    }
+
+    @NotNull
+    private static <V> Map<Integer, V> lruCache() {
+        return new LinkedHashMap<>(MAX_MAPPED_SEALED_SEGMENTS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, V> eldest) {
+                return size() > MAX_MAPPED_SEALED_SEGMENTS;
+            }
+        };
+    }
+
+    private static void checkLength(@NotNull String value) {
+        if (value.length() > JournalSegment.MAX_VALUE_LENGTH) {
+            throw new IllegalArgumentException("Value is too long for the change journal: " + value.length());
+        }
+    }
+}
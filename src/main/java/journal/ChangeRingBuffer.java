@@ -0,0 +1,83 @@
+package journal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// Ограниченный кольцевой буфер без блокировок: много писателей, один читатель (поток сброса журнала).
+// Каждая ячейка хранит свой номер последовательности, поэтому писатели синхронизируются только через CAS по head.
+final class ChangeRingBuffer {
+    private final AtomicReferenceArray<ChangeEvent> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private long tail; // меняется только читателем
+
+    ChangeRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    boolean offer(@NotNull ChangeEvent event) {
+        long pos = head.get();
+        while (true) {
+            final int index = (int) (pos & mask);
+            final long diff = sequences.getAcquire(index) - pos;
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    slots.setPlain(index, event);
+                    sequences.setRelease(index, pos + 1);
+                    return true;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    @Nullable
+    ChangeEvent poll() {
+        final int index = (int) (tail & mask);
+        if (sequences.getAcquire(index) != tail + 1) {
+            return null;
+        }
+        final ChangeEvent event = slots.getPlain(index);
+        slots.setPlain(index, null);
+        sequences.setRelease(index, tail + mask + 1);
+        tail++;
+        return event;
+    }
+
+    int drainTo(@NotNull Consumer<@NotNull ChangeEvent> consumer, int limit) {
+        int drained = 0;
+        ChangeEvent event;
+        while (drained < limit && (event = poll()) != null) {
+            consumer.accept(event);
+            drained++;
+        }
+        return drained;
+    }
+
+    // Количество событий, когда-либо принятых буфером
+    long published() {
+        return head.get();
+    }
+
+    boolean isEmpty() {
+        return sequences.getAcquire((int) (tail & mask)) != tail + 1;
+    }
+}
@@ -0,0 +1,182 @@
+package journal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32C;
+
+// Файл сегмента отображается в память целиком;
+// запись: [длина][CRC32C][номер изменения][секунды][наносекунды][id][инициатор], CRC считается по всему, что после него.
+// Нулевая длина означает конец записанных данных (хвост файла заполнен нулями).
+// Канал закрывается сразу после отображения: mapping остаётся действительным, а файловый дескриптор не удерживается.
+final class JournalSegment {
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final int FIXED_PAYLOAD_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES + 2 * Short.BYTES;
+    // В UTF-8 символ UTF-16 занимает не более трёх байт, поэтому закодированная строка всегда влезает в short
+    static final int MAX_VALUE_LENGTH = 0xFFFF / 3;
+    static final int MAX_RECORD_SIZE = HEADER_SIZE + FIXED_PAYLOAD_SIZE + 2 * 0xFFFF;
+
+    private final int number;
+    private final MappedByteBuffer buffer;
+    private final boolean writable;
+
+    private JournalSegment(int number, @NotNull MappedByteBuffer buffer, boolean writable) {
+        this.number = number;
+        this.buffer = buffer;
+        this.writable = writable;
+    }
+
+    // Открывает сегмент для дозаписи; существующие записи передаются в consumer
+    @NotNull
+    static JournalSegment openWritable(int number,
+                                       @NotNull Path file,
+                                       int size,
+                                       @Nullable ObjIntConsumer<@NotNull ChangeEvent> consumer) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        final JournalSegment segment = new JournalSegment(number, buffer, true);
+        buffer.position(segment.scan(consumer));
+        return segment;
+    }
+
+    @NotNull
+    static JournalSegment openReadOnly(int number, @NotNull Path file) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return new JournalSegment(number, buffer, false);
+    }
+
+    int getNumber() {
+        return number;
+    }
+
+    // Возвращает смещение записи или -1, если в сегменте не хватает места
+    synchronized int append(@NotNull ChangeEvent event) {
+        if (!writable) {
+            throw new IllegalStateException("Journal segment " + number + " is sealed");
+        }
+        final byte[] recordId = encode(event.recordId());
+        final byte[] initiator = encode(event.initiator());
+        final int payloadSize = FIXED_PAYLOAD_SIZE + recordId.length + initiator.length;
+        final int offset = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE + payloadSize) {
+            return -1;
+        }
+        buffer.position(offset + HEADER_SIZE)
+                .putInt(event.changeNumber())
+                .putLong(event.timestamp().toEpochSecond(ZoneOffset.UTC))
+                .putInt(event.timestamp().getNano())
+                .putShort((short) recordId.length)
+                .put(recordId)
+                .putShort((short) initiator.length)
+                .put(initiator);
+        buffer.putInt(offset + Integer.BYTES, checksum(offset, payloadSize));
+        // Длину пишем последней, чтобы незавершённая запись не была видна при повторном чтении
+        buffer.putInt(offset, payloadSize);
+        return offset;
+    }
+
+    @NotNull
+    synchronized ChangeEvent read(int offset) {
+        final int payloadSize = buffer.getInt(offset);
+        if (payloadSize <= 0) {
+            throw new IllegalStateException("No record in segment " + number + " at offset " + offset);
+        }
+        int pos = offset + HEADER_SIZE;
+        final int changeNumber = buffer.getInt(pos);
+        pos += Integer.BYTES;
+        final long epochSecond = buffer.getLong(pos);
+        pos += Long.BYTES;
+        final int nano = buffer.getInt(pos);
+        pos += Integer.BYTES;
+        final String recordId = decode(pos);
+        pos += Short.BYTES + Short.toUnsignedInt(buffer.getShort(pos));
+        final String initiator = decode(pos);
+        return new ChangeEvent(
+                recordId,
+                initiator,
+                changeNumber,
+                LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC));
+    }
+
+    // Обходит записи сегмента и возвращает смещение конца записанных данных.
+    // Первая повреждённая запись (например, страница mmap записана на диск лишь частично) считается концом журнала:
+    // в сегменте для дозаписи всё начиная с неё затирается нулями, чтобы новые записи легли на её место
+    int scan(@Nullable ObjIntConsumer<@NotNull ChangeEvent> consumer) {
+        int offset = 0;
+        while (buffer.capacity() - offset >= HEADER_SIZE && buffer.getInt(offset) != 0) {
+            if (!isValid(offset)) {
+                if (writable) {
+                    truncate(offset);
+                }
+                break;
+            }
+            if (consumer != null) {
+                consumer.accept(read(offset), offset);
+            }
+            offset += HEADER_SIZE + buffer.getInt(offset);
+        }
+        return offset;
+    }
+
+    private boolean isValid(int offset) {
+        final int payloadSize = buffer.getInt(offset);
+        if (payloadSize < FIXED_PAYLOAD_SIZE || payloadSize > buffer.capacity() - offset - HEADER_SIZE) {
+            return false;
+        }
+        if (buffer.getInt(offset + Integer.BYTES) != checksum(offset, payloadSize)) {
+            return false;
+        }
+        final int recordIdLengthPos = offset + HEADER_SIZE + Integer.BYTES + Long.BYTES + Integer.BYTES;
+        final int recordIdLength = Short.toUnsignedInt(buffer.getShort(recordIdLengthPos));
+        if (FIXED_PAYLOAD_SIZE + recordIdLength > payloadSize) {
+            return false;
+        }
+        final int initiatorLength = Short.toUnsignedInt(buffer.getShort(recordIdLengthPos + Short.BYTES + recordIdLength));
+        return FIXED_PAYLOAD_SIZE + recordIdLength + initiatorLength == payloadSize;
+    }
+
+    private void truncate(int offset) {
+        for (int pos = offset; pos < buffer.capacity(); pos++) {
+            buffer.put(pos, (byte) 0);
+        }
+    }
+
+    private int checksum(int offset, int payloadSize) {
+        final CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + HEADER_SIZE, payloadSize));
+        return (int) crc.getValue();
+    }
+
+    synchronized void force() {
+        if (writable) {
+            buffer.force();
+        }
+    }
+
+    @NotNull
+    private static byte[] encode(@NotNull String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @NotNull
+    private String decode(int pos) {
+        final byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort(pos))];
+        buffer.get(pos + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
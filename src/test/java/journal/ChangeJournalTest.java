@@ -0,0 +1,201 @@
+package journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeJournalTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 30, 15, 123_456_789);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsFlushedEventsByInitiatorAndRecord() {
+        try (ChangeJournal journal = ChangeJournal.open(directory)) {
+            journal.record(event("r1", "alice", 1));
+            journal.record(event("r2", "bob", 1));
+            journal.record(event("r1", "bob", 2));
+            journal.flush();
+
+            assertEquals(List.of(event("r2", "bob", 1), event("r1", "bob", 2)), journal.findByInitiator("bob"));
+            assertEquals(List.of(event("r1", "alice", 1), event("r1", "bob", 2)), journal.findByRecord("r1"));
+            assertEquals(List.of(), journal.findByInitiator("carol"));
+        }
+    }
+
+    @Test
+    void recoversEventsAcrossSegmentsAfterReopen() {
+        final List<ChangeEvent> written = writeManySegments();
+
+        try (ChangeJournal journal = openSmall()) {
+            assertEquals(written, journal.findByInitiator("alice"));
+            assertEquals(written.stream().filter(e -> e.recordId().equals("r7")).toList(), journal.findByRecord("r7"));
+        }
+        assertTrue(Files.exists(directory.resolve("journal-000001.idx")));
+    }
+
+    @Test
+    void findsEventsInMoreSegmentsThanAreCached() {
+        // Длинный идентификатор: в минимальный сегмент помещается всего несколько записей
+        final String padding = "x".repeat(JournalSegment.MAX_VALUE_LENGTH - 1);
+        final List<ChangeEvent> written = new ArrayList<>();
+        try (ChangeJournal journal = openSmall()) {
+            for (int i = 0; i < 200; i++) {
+                final ChangeEvent event = event(padding + i % 3, "alice", i);
+                journal.record(event);
+                written.add(event);
+            }
+            journal.flush();
+
+            assertTrue(Files.exists(directory.resolve("journal-000020.seg")), "Expected more than 16 segments");
+            assertEquals(written, journal.findByInitiator("alice"));
+        }
+        try (ChangeJournal journal = openSmall()) {
+            assertEquals(written, journal.findByInitiator("alice"));
+            assertEquals(written.stream().filter(e -> e.recordId().equals(padding + 1)).toList(),
+                    journal.findByRecord(padding + 1));
+        }
+    }
+
+    @Test
+    void rebuildsMissingOrCorruptSegmentIndex() throws IOException {
+        final List<ChangeEvent> written = writeManySegments();
+        Files.delete(directory.resolve("journal-000001.idx"));
+        Files.write(directory.resolve("journal-000002.idx"), new byte[]{1, 2, 3});
+
+        try (ChangeJournal journal = openSmall()) {
+            assertEquals(written, journal.findByInitiator("alice"));
+        }
+        assertNotNull(ChangeIndex.load(directory.resolve("journal-000001.idx")));
+        assertNotNull(ChangeIndex.load(directory.resolve("journal-000002.idx")));
+    }
+
+    @Test
+    void truncatesAtCorruptRecordAndAppendsAfterIt() throws IOException {
+        try (ChangeJournal journal = ChangeJournal.open(directory)) {
+            for (int i = 0; i < 10; i++) {
+                journal.record(event("r" + i, "alice", i));
+            }
+            journal.flush();
+        }
+        corruptRecord(directory.resolve("journal-000001.seg"), 6);
+
+        try (ChangeJournal journal = ChangeJournal.open(directory)) {
+            assertEquals(6, journal.findByInitiator("alice").size());
+            journal.record(event("r99", "alice", 99));
+            journal.flush();
+        }
+        try (ChangeJournal journal = ChangeJournal.open(directory)) {
+            final List<ChangeEvent> events = journal.findByInitiator("alice");
+            assertEquals(7, events.size());
+            assertEquals(event("r99", "alice", 99), events.get(6));
+        }
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ChangeJournal.open(directory, 16, 4, JournalSegment.MAX_RECORD_SIZE, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                () -> ChangeJournal.open(directory, 16, 4, JournalSegment.MAX_RECORD_SIZE, Duration.ofMillis(-1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> ChangeJournal.open(directory, 16, 0, JournalSegment.MAX_RECORD_SIZE, Duration.ofMillis(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> ChangeJournal.open(directory, 16, 4, 1024, Duration.ofMillis(1)));
+    }
+
+    @Test
+    void rejectsRecordAfterClose() {
+        final ChangeJournal journal = ChangeJournal.open(directory);
+        journal.close();
+
+        assertThrows(IllegalStateException.class, () -> journal.record(event("r1", "alice", 1)));
+    }
+
+    @Test
+    void keepsEveryAcceptedEventWhenClosedDuringWrites() throws InterruptedException {
+        final ChangeJournal journal = openSmall();
+        final List<ChangeEvent> accepted = Collections.synchronizedList(new ArrayList<>());
+        final List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            final String initiator = "writer" + w;
+            final Thread writer = new Thread(() -> {
+                for (int i = 0; ; i++) {
+                    final ChangeEvent event = event("r" + i, initiator, i);
+                    try {
+                        journal.record(event);
+                    } catch (IllegalStateException ex) {
+                        return;
+                    }
+                    accepted.add(event);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        Thread.sleep(50);
+        journal.close();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        try (ChangeJournal reopened = openSmall()) {
+            for (int w = 0; w < 4; w++) {
+                final String initiator = "writer" + w;
+                final List<ChangeEvent> found = reopened.findByInitiator(initiator);
+                assertTrue(found.containsAll(accepted.stream().filter(e -> e.initiator().equals(initiator)).toList()),
+                        "Lost accepted events of " + initiator);
+            }
+        }
+    }
+
+    // Маленький буфер и минимальные сегменты, чтобы журнал занял несколько файлов
+    private ChangeJournal openSmall() {
+        return ChangeJournal.open(directory, 8, 4, JournalSegment.MAX_RECORD_SIZE, Duration.ofMillis(1));
+    }
+
+    private List<ChangeEvent> writeManySegments() {
+        final List<ChangeEvent> written = new ArrayList<>();
+        try (ChangeJournal journal = openSmall()) {
+            for (int i = 0; i < 10_000; i++) {
+                final ChangeEvent event = event("r" + i % 10, "alice", i);
+                journal.record(event);
+                written.add(event);
+            }
+            journal.flush();
+        }
+        assertTrue(Files.exists(directory.resolve("journal-000003.seg")), "Expected several segments");
+        return written;
+    }
+
+    private static void corruptRecord(Path file, int recordNumber) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int offset = 0;
+            for (int i = 0; i < recordNumber; i++) {
+                offset += 2 * Integer.BYTES + buffer.getInt(offset);
+            }
+            final int target = offset + 2 * Integer.BYTES + 3;
+            buffer.put(target, (byte) (buffer.get(target) ^ 0x5A));
+            buffer.force();
+        }
+    }
+
+    private static ChangeEvent event(String recordId, String initiator, int changeNumber) {
+        return new ChangeEvent(recordId, initiator, changeNumber, NOW);
+    }
+}
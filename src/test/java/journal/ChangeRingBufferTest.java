@@ -0,0 +1,100 @@
+package journal;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeRingBufferTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void rejectsCapacityThatIsNotPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new ChangeRingBuffer(6));
+        assertThrows(IllegalArgumentException.class, () -> new ChangeRingBuffer(1));
+    }
+
+    @Test
+    void offerFailsWhenFull() {
+        final ChangeRingBuffer buffer = new ChangeRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(event(i)));
+        }
+        assertFalse(buffer.offer(event(4)));
+
+        assertEquals(event(0), buffer.poll());
+        assertTrue(buffer.offer(event(4)));
+    }
+
+    @Test
+    void keepsOrderAcrossWraparound() {
+        final ChangeRingBuffer buffer = new ChangeRingBuffer(4);
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(buffer.offer(event(next++)));
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals(event(expected++), buffer.poll());
+            }
+            assertTrue(buffer.isEmpty());
+            assertNull(buffer.poll());
+        }
+        assertEquals(300, buffer.published());
+    }
+
+    @Test
+    void drainToRespectsLimit() {
+        final ChangeRingBuffer buffer = new ChangeRingBuffer(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.offer(event(i));
+        }
+        final List<ChangeEvent> drained = new ArrayList<>();
+
+        assertEquals(3, buffer.drainTo(drained::add, 3));
+        assertEquals(2, buffer.drainTo(drained::add, 3));
+        assertEquals(List.of(event(0), event(1), event(2), event(3), event(4)), drained);
+    }
+
+    @Test
+    void deliversEveryEventFromConcurrentProducersOnce() throws InterruptedException {
+        final ChangeRingBuffer buffer = new ChangeRingBuffer(16);
+        final int producers = 4;
+        final int perProducer = 2_000;
+        final List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(event(base + i))) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        final Set<Integer> received = new HashSet<>();
+        while (received.size() < producers * perProducer) {
+            final ChangeEvent event = buffer.poll();
+            if (event != null) {
+                assertTrue(received.add(event.changeNumber()), "Duplicate event " + event);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    private static ChangeEvent event(int changeNumber) {
+        return new ChangeEvent("record", "initiator", changeNumber, NOW);
+    }
+}
@@ -0,0 +1,67 @@
+package ru.itfb;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShapeFactoryTest {
+    private final ShapeCalc.ShapeFactory factory = new ShapeCalc.ShapeFactory(false);
+
+    @Test
+    void createsEveryPermittedShapeThroughRegisteredProviders() {
+        final ShapeCalc.Circle circle = factory.createShape(ShapeCalc.Circle.class,
+                List.of(1L, BigDecimal.valueOf(-2), 3));
+        final ShapeCalc.Square square = factory.createShape(ShapeCalc.Square.class,
+                List.of(2L, BigDecimal.ONE, 1));
+        final ShapeCalc.Sphere sphere = factory.createShape(ShapeCalc.Sphere.class,
+                List.of(3L, BigDecimal.ONE, 1));
+        final ShapeCalc.Parallelogram parallelogram = factory.createShape(ShapeCalc.Parallelogram.class,
+                List.of(4L, BigDecimal.TEN, BigDecimal.ONE, BigDecimal.valueOf(2), 1));
+        final ShapeCalc.Cube cube = factory.createShape(ShapeCalc.Cube.class,
+                List.of(5L, BigDecimal.valueOf(2), 1));
+
+        assertEquals(1L, circle.getId());
+        assertEquals(BigDecimal.valueOf(2), circle.getRadius());
+        assertEquals(3, circle.getScale());
+        assertEquals(BigDecimal.ONE, square.getSide());
+        assertEquals(BigDecimal.ONE, sphere.getRadius());
+        assertEquals(BigDecimal.TEN, parallelogram.getArea());
+        assertEquals(BigDecimal.valueOf(8), cube.getVolume());
+    }
+
+    @Test
+    void rejectsWrongNumberOfParams() {
+        final RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> factory.createShape(ShapeCalc.Circle.class, List.of(1L, BigDecimal.ONE)));
+
+        assertEquals("Circle expects 3 parameters, got 2", ex.getMessage());
+    }
+
+    @Test
+    void rejectsParamOfWrongType() {
+        final RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> factory.createShape(ShapeCalc.Cube.class, List.of(1L, 2, 1)));
+
+        assertEquals("Parameter #1 of Cube must be BigDecimal, got Integer", ex.getMessage());
+    }
+
+    @Test
+    void rejectsNegativeParamsInStrictMode() {
+        final ShapeCalc.ShapeFactory strictFactory = new ShapeCalc.ShapeFactory(true);
+
+        assertThrows(RuntimeException.class,
+                () -> strictFactory.createShape(ShapeCalc.Circle.class, List.of(1L, BigDecimal.valueOf(-1), 1)));
+    }
+
+    @Test
+    void rejectsDuplicateProviders() {
+        final RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> ShapeCalc.ShapeRegistry.index(
+                        List.of(new ShapeCalc.Circle.Provider(), new ShapeCalc.Circle.Provider())));
+
+        assertTrue(ex.getMessage().startsWith("Duplicate shape provider for"), ex.getMessage());
+    }
+}